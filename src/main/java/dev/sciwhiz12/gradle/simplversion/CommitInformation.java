@@ -0,0 +1,100 @@
+/*
+ * simplversion - Copyright (c) 2022 sciwhiz12
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.sciwhiz12.gradle.simplversion;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+
+import java.util.Objects;
+
+/**
+ * The information for the current commit, without any version information.
+ *
+ * @see VersionExtension#getCommit()
+ */
+public class CommitInformation {
+    private final String timestamp;
+    private final String commitId;
+    private final String abbrevId;
+
+    CommitInformation(String timestamp, String commitId, String abbrevId) {
+        this.timestamp = timestamp;
+        this.commitId = commitId;
+        this.abbrevId = abbrevId;
+    }
+
+    /**
+     * Returns the timestamp of the current commit, formatted with the ISO-8601 extended offset date-time format.
+     *
+     * @return the current commit timestamp
+     * @see java.time.format.DateTimeFormatter#ISO_OFFSET_DATE_TIME
+     */
+    public String getCommitTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the full SHA-1 of the current commit, in lowercase hexadecimal format.
+     *
+     * @return the full SHA-1 of the current commit
+     * @see AnyObjectId#name()
+     * @see #getAbbreviatedCommitId()
+     */
+    public String getFullCommitId() {
+        return commitId;
+    }
+
+    /**
+     * Returns the abbreviated SHA-1 of the current commit, in lowercase hexadecimal format. This is always the
+     * {@linkplain VersionExtension#getAbbreviationLength() fixed abbreviation length}, and is not checked for
+     * uniqueness within the repository.
+     *
+     * @return the abbreviated SHA-1 of the current commit.
+     * @see #getFullCommitId()
+     */
+    public String getAbbreviatedCommitId() {
+        return abbrevId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CommitInformation that = (CommitInformation) o;
+        return timestamp.equals(that.timestamp) && commitId.equals(that.commitId) && abbrevId.equals(that.abbrevId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timestamp, commitId, abbrevId);
+    }
+
+    /**
+     * Returns the full SHA-1 of the current commit. This effectively calls {@link #getFullCommitId()}.
+     *
+     * @return the full SHA-1 of the current commit
+     */
+    @Override
+    public String toString() {
+        return getFullCommitId();
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * simplversion - Copyright (c) 2022 sciwhiz12
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.sciwhiz12.gradle.simplversion;
+
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A minimal reader for the {@code HEAD} commit of a repository, which reads the files of the Git directory directly
+ * instead of initializing a full JGit repository.
+ *
+ * <p>{@code HEAD} is resolved through loose refs and the {@code packed-refs} file, and only the header of the commit
+ * object is inflated to read the committer timestamp. The commit object may be a loose object or a non-delta entry in a
+ * pack with a version 2 index. Anything else (such as reftable refs, alternate object directories, or deltified
+ * commits) causes an {@link UnsupportedLayoutException}, in which case {@link #readWithFallback(File)} falls back to
+ * reading the repository with JGit.</p>
+ */
+final class HeadCommitReader {
+    private static final Logger LOGGER = Logging.getLogger(HeadCommitReader.class);
+    private static final int MAX_SYMREF_DEPTH = 5;
+    private static final int PACK_IDX_MAGIC = 0xff744f63; // "\377tOc"
+    private static final int OBJ_COMMIT = 1;
+
+    private HeadCommitReader() {
+    }
+
+    /**
+     * Finds the Git directory for the given directory, looking at the {@code GIT_DIR} environment variable first and
+     * then searching the directory and its parents for a {@code .git} directory or file.
+     *
+     * @param directory the starting directory
+     * @return the Git directory, or {@code null} if none was found
+     * @throws IOException if an error occurs while reading a {@code .git} file
+     */
+    @Nullable
+    static File findGitDir(File directory) throws IOException {
+        final String gitDirEnv = System.getenv("GIT_DIR");
+        if (gitDirEnv != null) return new File(gitDirEnv);
+
+        for (File current = directory.getAbsoluteFile(); current != null; current = current.getParentFile()) {
+            final File dotGit = new File(current, ".git");
+            if (dotGit.isDirectory() && new File(dotGit, "HEAD").isFile()) {
+                return dotGit;
+            } else if (dotGit.isFile()) {
+                final String content = readFirstLine(dotGit);
+                if (content.startsWith("gitdir:")) {
+                    final File gitDir = new File(content.substring("gitdir:".length()).trim());
+                    return gitDir.isAbsolute() ? gitDir : new File(current, gitDir.getPath());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the {@code HEAD} commit of the repository containing the given directory. The files of the Git directory
+     * are read directly if possible; if the Git directory is not found, or cannot be read directly, the repository is
+     * opened with JGit instead.
+     *
+     * @param directory the directory within the repository
+     * @return the {@code HEAD} commit
+     * @throws IOException if the {@code HEAD} commit cannot be read, even with JGit
+     */
+    static HeadCommit readWithFallback(File directory) throws IOException {
+        try {
+            final File gitDir = findGitDir(directory);
+            if (gitDir == null) throw new RepositoryNotFoundException(directory);
+            return read(gitDir);
+        } catch (IOException | UnsupportedLayoutException e) {
+            LOGGER.info("Failed to read HEAD commit directly, falling back to opening the repository: {}", e.toString());
+        }
+
+        final FileRepositoryBuilder builder = new FileRepositoryBuilder().readEnvironment().findGitDir(directory);
+        if (builder.getGitDir() == null) throw new RepositoryNotFoundException(directory);
+        try (Repository repository = builder.setMustExist(true).build()) {
+            final ObjectId headCommitId = repository.resolve(Constants.HEAD);
+            if (headCommitId == null) throw new IOException("HEAD of " + repository.getDirectory() + " does not point to a commit");
+
+            final RevCommit headCommit = repository.parseCommit(headCommitId);
+            return new HeadCommit(headCommit.name(), VersionExtension.getCommitTime(headCommit));
+        }
+    }
+
+    /**
+     * Reads the {@code HEAD} commit of the given Git directory.
+     *
+     * @param gitDir the Git directory
+     * @return the {@code HEAD} commit
+     * @throws IOException                if an error occurs while reading the Git directory
+     * @throws UnsupportedLayoutException if the repository uses a layout not supported by this reader
+     */
+    static HeadCommit read(File gitDir) throws IOException, UnsupportedLayoutException {
+        final File commonDir = getCommonDir(gitDir);
+        if (new File(commonDir, "reftable").isDirectory()) {
+            throw new UnsupportedLayoutException("reftable refs are not supported");
+        }
+        if (new File(commonDir, "objects/info/alternates").isFile()) {
+            throw new UnsupportedLayoutException("alternate object directories are not supported");
+        }
+
+        final String commitId = resolveHead(gitDir, commonDir);
+        final byte[] header = readCommitHeader(new File(commonDir, "objects"), commitId);
+        return new HeadCommit(commitId, parseCommitterTime(header));
+    }
+
+    private static File getCommonDir(File gitDir) throws IOException {
+        final File commonDirFile = new File(gitDir, "commondir");
+        if (!commonDirFile.isFile()) return gitDir;
+
+        final File commonDir = new File(readFirstLine(commonDirFile).trim());
+        return commonDir.isAbsolute() ? commonDir : new File(gitDir, commonDir.getPath());
+    }
+
+    private static String resolveHead(File gitDir, File commonDir) throws IOException {
+        String content = readFirstLine(new File(gitDir, "HEAD")).trim();
+        for (int depth = 0; content.startsWith("ref:"); depth++) {
+            if (depth >= MAX_SYMREF_DEPTH) throw new IOException("Symbolic ref chain too deep for HEAD");
+
+            final String refName = content.substring("ref:".length()).trim();
+            final File looseRef = new File(commonDir, refName);
+            if (looseRef.isFile()) {
+                content = readFirstLine(looseRef).trim();
+            } else {
+                content = readPackedRef(commonDir, refName);
+            }
+        }
+        if (!isObjectId(content)) throw new IOException("HEAD does not point to an object ID: " + content);
+        return content;
+    }
+
+    private static String readPackedRef(File commonDir, String refName) throws IOException {
+        final File packedRefs = new File(commonDir, "packed-refs");
+        if (packedRefs.isFile()) {
+            final List<String> lines = Files.readAllLines(packedRefs.toPath(), StandardCharsets.UTF_8);
+            for (String line : lines) {
+                if (line.isEmpty() || line.charAt(0) == '#' || line.charAt(0) == '^') continue;
+                final int space = line.indexOf(' ');
+                if (space > 0 && line.substring(space + 1).equals(refName)) {
+                    return line.substring(0, space);
+                }
+            }
+        }
+        throw new IOException("Ref " + refName + " does not exist; HEAD may point to an unborn branch");
+    }
+
+    private static byte[] readCommitHeader(File objectsDir, String commitId)
+            throws IOException, UnsupportedLayoutException {
+        final File looseObject = new File(objectsDir, commitId.substring(0, 2) + File.separator + commitId.substring(2));
+        if (looseObject.isFile()) {
+            try (InputStream in = new InflaterInputStream(Files.newInputStream(looseObject.toPath()))) {
+                final byte[] content = readHeaders(in);
+                final int nul = indexOf(content, (byte) 0, 0);
+                if (nul < 0 || !new String(content, 0, nul, StandardCharsets.US_ASCII).startsWith("commit ")) {
+                    throw new IOException("Object " + commitId + " is not a commit");
+                }
+                final byte[] header = new byte[content.length - nul - 1];
+                System.arraycopy(content, nul + 1, header, 0, header.length);
+                return header;
+            }
+        }
+
+        final File[] indexes = new File(objectsDir, "pack").listFiles((dir, name) -> name.endsWith(".idx"));
+        if (indexes != null) {
+            final byte[] id = toBytes(commitId);
+            for (File index : indexes) {
+                final long offset = findOffset(index, id);
+                if (offset < 0) continue;
+
+                final String indexName = index.getName();
+                final File pack = new File(index.getParentFile(), indexName.substring(0, indexName.length() - 4) + ".pack");
+                return readPackedCommitHeader(pack, offset, commitId);
+            }
+        }
+        throw new IOException("Commit " + commitId + " was not found in the object database");
+    }
+
+    /**
+     * Finds the offset of the object in the pack for the given version 2 pack index, or {@code -1} if the object is not
+     * in the pack. Only the fan-out table and the entries visited by the binary search are read.
+     */
+    private static long findOffset(File index, byte[] id) throws IOException, UnsupportedLayoutException {
+        try (RandomAccessFile file = new RandomAccessFile(index, "r")) {
+            if (file.readInt() != PACK_IDX_MAGIC || file.readInt() != 2) {
+                throw new UnsupportedLayoutException("Only version 2 pack indexes are supported");
+            }
+            final long fanoutStart = 8;
+            final int firstByte = id[0] & 0xff;
+            int low = 0;
+            if (firstByte > 0) {
+                file.seek(fanoutStart + (firstByte - 1) * 4L);
+                low = file.readInt();
+            }
+            file.seek(fanoutStart + firstByte * 4L);
+            int high = file.readInt();
+            file.seek(fanoutStart + 255 * 4L);
+            final int count = file.readInt();
+
+            final long namesStart = fanoutStart + 256 * 4L;
+            final byte[] name = new byte[id.length];
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                file.seek(namesStart + (long) mid * id.length);
+                file.readFully(name);
+                final int cmp = compare(name, id);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid;
+                } else {
+                    final long offsetsStart = namesStart + (long) count * id.length + count * 4L;
+                    file.seek(offsetsStart + mid * 4L);
+                    final int offset = file.readInt();
+                    if ((offset & 0x80000000) == 0) return offset;
+
+                    file.seek(offsetsStart + count * 4L + (offset & 0x7fffffff) * 8L);
+                    return file.readLong();
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static byte[] readPackedCommitHeader(File pack, long offset, String commitId)
+            throws IOException, UnsupportedLayoutException {
+        try (RandomAccessFile file = new RandomAccessFile(pack, "r")) {
+            file.seek(offset);
+            int c = file.readUnsignedByte();
+            final int type = (c >> 4) & 0x7;
+            while ((c & 0x80) != 0) c = file.readUnsignedByte();
+            if (type != OBJ_COMMIT) {
+                throw new UnsupportedLayoutException("Pack entry for " + commitId + " is not a whole commit (type " + type + ")");
+            }
+
+            final Inflater inflater = new Inflater();
+            try {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final byte[] input = new byte[4096];
+                final byte[] output = new byte[4096];
+                while (!inflater.finished()) {
+                    if (inflater.needsInput()) {
+                        final int read = file.read(input);
+                        if (read < 0) throw new IOException("Unexpected end of pack " + pack.getName());
+                        inflater.setInput(input, 0, read);
+                    }
+                    final int inflated = inflater.inflate(output);
+                    out.write(output, 0, inflated);
+                    if (indexOfHeaderEnd(out.toByteArray(), out.size()) >= 0) break;
+                }
+                return out.toByteArray();
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt pack entry for " + commitId, e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Reads the given stream until the end of the commit headers (the first blank line) or the end of the stream.
+     */
+    private static byte[] readHeaders(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+            if (indexOfHeaderEnd(out.toByteArray(), out.size()) >= 0) break;
+        }
+        return out.toByteArray();
+    }
+
+    private static OffsetDateTime parseCommitterTime(byte[] header) throws IOException {
+        final String headers = new String(header, StandardCharsets.UTF_8);
+        final int end = headers.indexOf("\n\n");
+        for (String line : (end >= 0 ? headers.substring(0, end) : headers).split("\n")) {
+            if (!line.startsWith("committer ")) continue;
+
+            final String[] parts = line.substring(line.lastIndexOf('>') + 1).trim().split(" ");
+            if (parts.length != 2) break;
+            try {
+                final ZoneOffset offset = ZoneOffset.ofTotalSeconds(parseTimeZone(parts[1]) * 60);
+                return OffsetDateTime.ofInstant(Instant.ofEpochSecond(Long.parseLong(parts[0])), offset);
+            } catch (RuntimeException e) {
+                break;
+            }
+        }
+        throw new IOException("Commit has no valid committer line");
+    }
+
+    private static int parseTimeZone(String timeZone) {
+        final int sign = timeZone.charAt(0) == '-' ? -1 : 1;
+        final int value = Integer.parseInt(timeZone.substring(1));
+        return sign * ((value / 100) * 60 + value % 100);
+    }
+
+    private static int indexOfHeaderEnd(byte[] bytes, int length) {
+        for (int i = 0; i + 1 < length; i++) {
+            if (bytes[i] == '\n' && bytes[i + 1] == '\n') return i;
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == value) return i;
+        }
+        return -1;
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length; i++) {
+            final int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+            if (cmp != 0) return cmp;
+        }
+        return 0;
+    }
+
+    private static boolean isObjectId(String value) {
+        if (value.length() != 40 && value.length() != 64) return false;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) return false;
+        }
+        return true;
+    }
+
+    private static byte[] toBytes(String hex) {
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static String readFirstLine(File file) throws IOException {
+        final List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        return lines.isEmpty() ? "" : lines.get(0);
+    }
+
+    /**
+     * Thrown when the repository uses a layout which is not supported by {@link HeadCommitReader}.
+     */
+    static final class UnsupportedLayoutException extends Exception {
+        UnsupportedLayoutException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The {@code HEAD} commit, as read by {@link HeadCommitReader}.
+     */
+    static final class HeadCommit {
+        final String commitId;
+        final OffsetDateTime commitTime;
+
+        HeadCommit(String commitId, OffsetDateTime commitTime) {
+            this.commitId = commitId;
+            this.commitTime = commitTime;
+        }
+    }
+}
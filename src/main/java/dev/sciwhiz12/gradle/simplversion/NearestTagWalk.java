@@ -0,0 +1,243 @@
+/*
+ * simplversion - Copyright (c) 2022 sciwhiz12
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.sciwhiz12.gradle.simplversion;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevTag;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the nearest tag for many commits at once, using a single memoized walk over the shared history.
+ *
+ * <p>The history reachable from the target commits is walked in reverse topological order (parents before children),
+ * so the nearest tag of each commit is derived from the already-computed nearest tags of its parents. A tagged commit
+ * is its own nearest tag with a distance of zero; otherwise, the parent whose nearest tag has the shortest distance is
+ * chosen (preferring earlier parents on ties), and the distance is one more than that parent's. As the walk is sorted
+ * in reverse, the whole history reachable from the target commits is read before the first commit is processed.</p>
+ *
+ * <p>This picks the tag with the shortest path of ancestry. {@code git describe} instead picks the tag with the fewest
+ * commits not reachable from it; these are the same tag unless there is a merge between the commit and its nearest tag
+ * whose parents have different nearest tags (or only one of them has a tag), in which case the result is marked as
+ * {@linkplain NearestTag#ambiguous ambiguous}. Across merges, the distance is shorter than the commit count of
+ * {@code git describe}, though both are zero only for tagged commits.</p>
+ *
+ * <p>In a shallow clone, the parents of the shallow commits are unknown. The result for a commit is marked as not
+ * trusted if a shallow commit is reachable from it without passing through a tagged commit, as a nearer tag may exist
+ * past the shallow boundary.</p>
+ *
+ * <p>For single commits and ambiguous results, {@link #describe(Repository, ObjectId)} finds the tag using
+ * {@code git describe} instead.</p>
+ */
+final class NearestTagWalk {
+    private NearestTagWalk() {
+    }
+
+    /**
+     * Finds the nearest tag of each of the given commits.
+     *
+     * @param repository the repository
+     * @param walk       the walk used to parse the target commits; it is reset and reconfigured by this method
+     * @param targets    the target commits
+     * @return a map of each target commit to its nearest tag
+     * @throws IOException if an error occurs while reading the repository
+     */
+    static Map<RevCommit, NearestTag> find(Repository repository, RevWalk walk, Collection<RevCommit> targets)
+            throws IOException {
+        final Map<ObjectId, String> tags = collectTags(repository, walk);
+
+        walk.reset();
+        walk.setRetainBody(false);
+        walk.sort(RevSort.TOPO);
+        walk.sort(RevSort.REVERSE, true);
+        walk.markStart(targets);
+
+        final Set<ObjectId> shallowCommits = walk.getObjectReader().getShallowCommits();
+        final Set<RevCommit> remaining = new HashSet<>(targets);
+        final Map<RevCommit, NearestTag> memo = new HashMap<>();
+        RevCommit commit;
+        while (!remaining.isEmpty() && (commit = walk.next()) != null) {
+            NearestTag nearest;
+            final String tag = tags.get(commit);
+            if (tag != null) {
+                nearest = new NearestTag(tag, 0, true);
+            } else {
+                // Shallow commits have their parents cut off, so anything past them is unknown
+                String tagName = null;
+                int distance = 0;
+                boolean trusted = !shallowCommits.contains(commit);
+                boolean ambiguous = false;
+                final Set<String> parentTags = new HashSet<>();
+                for (RevCommit parent : commit.getParents()) {
+                    final NearestTag parentNearest = memo.get(parent);
+                    if (parentNearest == null) {
+                        trusted = false;
+                        continue;
+                    }
+                    trusted &= parentNearest.trusted;
+                    ambiguous |= parentNearest.ambiguous;
+                    parentTags.add(parentNearest.tagName);
+                    if (parentNearest.tagName != null && (tagName == null || parentNearest.distance + 1 < distance)) {
+                        tagName = parentNearest.tagName;
+                        distance = parentNearest.distance + 1;
+                    }
+                }
+                // A merge of histories with different nearest tags may be described with any of them
+                ambiguous |= parentTags.size() > 1;
+                nearest = new NearestTag(tagName, distance, trusted, ambiguous);
+            }
+            memo.put(commit, nearest);
+            remaining.remove(commit);
+        }
+
+        final Map<RevCommit, NearestTag> result = new HashMap<>();
+        for (RevCommit target : targets) {
+            result.put(target, memo.get(target));
+        }
+        return result;
+    }
+
+    /**
+     * Finds the nearest tag of the given commit using {@code git describe}, which picks the tag with the fewest commits
+     * not reachable from it. The commit count is the number of those commits.
+     *
+     * <p>In a shallow clone, {@code git describe} stops at the shallow commits. The result is then trusted only if no
+     * shallow commit is among the commits not reachable from the chosen tag: the count is then exact, and any tag
+     * past the shallow commits would have more commits not reachable from it. If no tag was found, the result is
+     * trusted only if no shallow commit is reachable from the commit.</p>
+     *
+     * @param repository the repository
+     * @param target     the commit
+     * @return the nearest tag of the commit
+     * @throws IOException     if an error occurs while reading the repository
+     * @throws GitAPIException if an error occurs while describing the commit
+     */
+    static NearestTag describe(Repository repository, ObjectId target) throws IOException, GitAPIException {
+        String tagName = null;
+        int distance = 0;
+        final String describe = Git.wrap(repository).describe().setTarget(target).setTags(true).setLong(true).call();
+        if (describe != null) {
+            final int lastSep = describe.lastIndexOf("-");
+            final String allExceptLast = describe.substring(0, lastSep);
+            final int secondToLastSep = allExceptLast.lastIndexOf("-");
+            tagName = allExceptLast.substring(0, secondToLastSep);
+            distance = Integer.parseInt(allExceptLast.substring(secondToLastSep + 1));
+        }
+
+        try (RevWalk walk = new RevWalk(repository)) {
+            final Set<ObjectId> shallowCommits = walk.getObjectReader().getShallowCommits();
+            if (shallowCommits.isEmpty()) return new NearestTag(tagName, distance, true);
+
+            walk.setRetainBody(false);
+            walk.markStart(walk.parseCommit(target));
+            if (tagName != null) {
+                final Ref tag = repository.exactRef(Constants.R_TAGS + tagName);
+                if (tag != null && tag.getObjectId() != null) {
+                    walk.markUninteresting(walk.parseCommit(tag.getObjectId()));
+                }
+            }
+            boolean trusted = true;
+            for (RevCommit commit : walk) {
+                if (shallowCommits.contains(commit)) {
+                    trusted = false;
+                    break;
+                }
+            }
+            return new NearestTag(tagName, distance, trusted);
+        }
+    }
+
+    /**
+     * Collects the tags which point (directly or through annotated tags) to commits. If a commit has multiple tags,
+     * the newest annotated tag is preferred, then lightweight tags; remaining ties are broken by preferring the first
+     * tag name in lexicographic order. This is the same tag as chosen by {@code git describe}.
+     */
+    static Map<ObjectId, String> collectTags(Repository repository, RevWalk walk) throws IOException {
+        final Map<ObjectId, String> tags = new HashMap<>();
+        final Map<ObjectId, Long> tagTimes = new HashMap<>();
+        for (Ref ref : repository.getRefDatabase().getRefsByPrefix(Constants.R_TAGS)) {
+            final ObjectId id = ref.getObjectId();
+            if (id == null) continue;
+
+            final RevObject object = walk.parseAny(id);
+            final long tagTime = object instanceof RevTag ? tagTime((RevTag) object) : Long.MIN_VALUE;
+            final RevObject target = walk.peel(object);
+            if (!(target instanceof RevCommit)) continue;
+
+            final String name = Repository.shortenRefName(ref.getName());
+            final String existing = tags.get(target);
+            if (existing != null) {
+                final long existingTime = tagTimes.get(target);
+                if (existingTime > tagTime || (existingTime == tagTime && existing.compareTo(name) < 0)) continue;
+            }
+            tags.put(target, name);
+            tagTimes.put(target, tagTime);
+        }
+        return tags;
+    }
+
+    private static long tagTime(RevTag tag) {
+        final PersonIdent tagger = tag.getTaggerIdent();
+        return tagger != null ? tagger.getWhen().getTime() : Long.MIN_VALUE;
+    }
+
+    /**
+     * The nearest tag of a commit. The tag name is {@code null} if no tag is reachable, and the result is not trusted if
+     * a shallow commit is reachable from the commit without passing through a tagged commit. The result is ambiguous if
+     * {@code git describe} may choose a different tag.
+     */
+    static final class NearestTag {
+        @Nullable
+        final String tagName;
+        final int distance;
+        final boolean trusted;
+        final boolean ambiguous;
+
+        NearestTag(@Nullable String tagName, int distance, boolean trusted) {
+            this(tagName, distance, trusted, false);
+        }
+
+        NearestTag(@Nullable String tagName, int distance, boolean trusted, boolean ambiguous) {
+            this.tagName = tagName;
+            this.distance = distance;
+            this.trusted = trusted;
+            this.ambiguous = ambiguous;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * simplversion - Copyright (c) 2022 sciwhiz12
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.sciwhiz12.gradle.simplversion;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The state of a repository which is needed to calculate a version, independent of the configuration of any
+ * {@linkplain VersionExtension extension}. This is read once per repository by the {@link VersionRepositoryService},
+ * and shared by all projects in that repository.
+ */
+final class RepositoryState {
+    private static final Logger LOGGER = Logging.getLogger(RepositoryState.class);
+
+    final File gitDir;
+    @Nullable
+    final String branchName;
+    @Nullable
+    final String commitId;
+    @Nullable
+    final String timestamp;
+    final boolean shallow;
+    @Nullable
+    final String headTagName;
+    @Nullable
+    private NearestTagWalk.NearestTag nearestTag;
+    @Nullable
+    private Boolean dirty;
+    @Nullable
+    private String abbrevId;
+
+    private RepositoryState(File gitDir, @Nullable String branchName, @Nullable String commitId,
+                            @Nullable String timestamp, boolean shallow, @Nullable String headTagName,
+                            @Nullable NearestTagWalk.NearestTag nearestTag, @Nullable Boolean dirty) {
+        this.gitDir = gitDir;
+        this.branchName = branchName;
+        this.commitId = commitId;
+        this.timestamp = timestamp;
+        this.shallow = shallow;
+        this.headTagName = headTagName;
+        this.nearestTag = nearestTag;
+        this.dirty = dirty;
+    }
+
+    /**
+     * Reads the state of the repository containing the given directory.
+     *
+     * <p>For a full clone, the nearest tag is taken from {@code git describe}. For a shallow clone, only the tag
+     * pointing at {@code HEAD} is read, without walking the history; the nearest tag is only described when first
+     * {@linkplain #getNearestTag() requested}, as the {@linkplain ShallowClonePolicy shallow clone policy} may not need
+     * it. The workspace is only checked for uncommitted changes if a tag was found.</p>
+     *
+     * @param directory the directory within the repository
+     * @return the repository state
+     * @throws Exception if an error occurs while reading the repository
+     */
+    static RepositoryState read(File directory) throws Exception {
+        final long startTime = System.nanoTime();
+        try (Repository repository = new FileRepositoryBuilder()
+                .readEnvironment()
+                .findGitDir(directory)
+                .setMustExist(true).build()) {
+            final long openTime = System.nanoTime();
+            final String branchName = VersionExtension.getBranchName(repository);
+
+            // Read the shallow commits up front, so the history walk can be skipped for shallow clones
+            final boolean shallow;
+            try (ObjectReader reader = repository.newObjectReader()) {
+                shallow = !reader.getShallowCommits().isEmpty();
+            }
+
+            // Find HEAD commit and extract ID and timestamp
+            String commitId = null;
+            String timestamp = null;
+            try {
+                final ObjectId headCommitId = repository.resolve(Constants.HEAD);
+                final RevCommit headCommit = repository.parseCommit(headCommitId);
+
+                timestamp = VersionExtension.formatTimestamp(headCommit);
+                commitId = headCommit.name();
+            } catch (Exception e) {
+                LOGGER.info("Failed to get commit ID, may be in detached HEAD state: {}", e.toString());
+            }
+            final long headTime = System.nanoTime();
+
+            String headTagName = null;
+            NearestTagWalk.NearestTag nearestTag = null;
+            if (commitId == null) {
+                nearestTag = new NearestTagWalk.NearestTag(null, 0, !shallow);
+            } else if (shallow) {
+                try (RevWalk walk = new RevWalk(repository)) {
+                    headTagName = NearestTagWalk.collectTags(repository, walk).get(ObjectId.fromString(commitId));
+                }
+            } else {
+                nearestTag = NearestTagWalk.describe(repository, ObjectId.fromString(commitId));
+            }
+            final long describeTime = System.nanoTime();
+
+            Boolean dirty = null;
+            if (headTagName != null || (nearestTag != null && nearestTag.tagName != null)) {
+                dirty = !Git.wrap(repository).status().call().isClean();
+            }
+            final long statusTime = System.nanoTime();
+
+            LOGGER.info("Read repository {}{} in {} ms (open: {} ms, head: {} ms, describe: {} ms, status: {} ms)",
+                    repository.getDirectory(), shallow ? " (shallow clone)" : "",
+                    VersionExtension.elapsedMillis(startTime, statusTime),
+                    VersionExtension.elapsedMillis(startTime, openTime),
+                    VersionExtension.elapsedMillis(openTime, headTime),
+                    VersionExtension.elapsedMillis(headTime, describeTime),
+                    VersionExtension.elapsedMillis(describeTime, statusTime));
+
+            return new RepositoryState(repository.getDirectory(), branchName, commitId, timestamp, shallow,
+                    headTagName, nearestTag, dirty);
+        }
+    }
+
+    /**
+     * Returns the nearest tag of the {@code HEAD} commit, as found by {@code git describe}. For a shallow clone, this is
+     * only described when first requested, and the result may not be trusted.
+     *
+     * @return the nearest tag of the {@code HEAD} commit
+     * @throws IOException     if an error occurs while reading the repository
+     * @throws GitAPIException if an error occurs while describing the commit
+     * @see NearestTagWalk#describe(Repository, ObjectId)
+     */
+    synchronized NearestTagWalk.NearestTag getNearestTag() throws IOException, GitAPIException {
+        if (nearestTag == null && commitId != null) {
+            final long startTime = System.nanoTime();
+            try (Repository repository = openRepository()) {
+                nearestTag = NearestTagWalk.describe(repository, ObjectId.fromString(commitId));
+            }
+            LOGGER.info("Described shallow clone {} in {} ms", gitDir,
+                    VersionExtension.elapsedMillis(startTime, System.nanoTime()));
+        }
+        return nearestTag;
+    }
+
+    /**
+     * Returns whether the workspace has any uncommitted (including untracked) changes. This is read along with the
+     * repository state if a tag was found then, and otherwise when first requested.
+     *
+     * @return whether the workspace is dirty
+     * @throws IOException     if an error occurs while reading the repository
+     * @throws GitAPIException if an error occurs while checking the workspace
+     */
+    synchronized boolean isDirty() throws IOException, GitAPIException {
+        if (dirty == null) {
+            try (Repository repository = openRepository()) {
+                dirty = !Git.wrap(repository).status().call().isClean();
+            }
+        }
+        return dirty;
+    }
+
+    /**
+     * Returns the abbreviation of the {@code HEAD} commit ID which is unique in the repository. As finding a unique
+     * abbreviation requires scanning the object database, it is only calculated when first requested, by reopening the
+     * repository, and is then shared by all projects in the repository.
+     *
+     * @return the unique abbreviated commit ID, or {@code null} if the {@code HEAD} commit could not be read
+     * @throws IOException if an error occurs while reading the repository
+     */
+    @Nullable
+    synchronized String getAbbreviatedCommitId() throws IOException {
+        if (abbrevId == null && commitId != null) {
+            try (Repository repository = openRepository();
+                 ObjectReader reader = repository.newObjectReader()) {
+                abbrevId = reader.abbreviate(ObjectId.fromString(commitId)).name();
+            }
+        }
+        return abbrevId;
+    }
+
+    private Repository openRepository() throws IOException {
+        return new FileRepositoryBuilder()
+                .readEnvironment()
+                .setGitDir(gitDir)
+                .setMustExist(true).build();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * simplversion - Copyright (c) 2022 sciwhiz12
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.sciwhiz12.gradle.simplversion;
+
+/**
+ * The policy for calculating the version when the repository is a shallow clone.
+ *
+ * <p>In a shallow clone, the history beyond the shallow commits is missing, so the nearest tag may not be reachable and
+ * the number of commits since the nearest tag may be wrong. The {@link #FAIL} and {@link #FALLBACK} policies describe
+ * the current commit as for a full clone, with {@code git describe} stopping at the shallow commits, and only apply if
+ * the result cannot be trusted: that is, if the tag or the number of commits since it may differ from that of a full
+ * clone. The {@link #HEAD_TAGS_ONLY} policy does not walk the history at all.</p>
+ *
+ * @see VersionExtension#getShallowClonePolicy()
+ */
+public enum ShallowClonePolicy {
+    /**
+     * Describes the current commit up to the shallow commits, and fails the build if the result cannot be trusted.
+     */
+    FAIL,
+    /**
+     * Describes the current commit up to the shallow commits, and uses the
+     * {@linkplain VersionExtension#getShallowFallbackVersion() fallback version} if the result cannot be trusted. The
+     * fallback version is marked as {@linkplain VersionInformation#isTrusted() not trusted}.
+     */
+    FALLBACK,
+    /**
+     * Uses only the tags pointing at the current commit, without walking the history. If a tag points at the current
+     * commit, the version is calculated from that tag as usual, and is trusted; otherwise, the
+     * {@linkplain VersionExtension#getShallowFallbackVersion() fallback version} is used and is marked as
+     * {@linkplain VersionInformation#isTrusted() not trusted}, even if a tag could be found within the shallow history.
+     * This is the fastest policy, suited to CI builds which only publish releases from tagged commits.
+     */
+    HEAD_TAGS_ONLY
+}
@@ -0,0 +1,187 @@
+/*
+ * simplversion - Copyright (c) 2022 sciwhiz12
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.sciwhiz12.gradle.simplversion;
+
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The storage settings for the JGit object database, used when reading the repository to calculate the version. These
+ * are configured through the {@code storage} block of the {@linkplain VersionExtension extension}.
+ *
+ * <p>JGit keeps a single pack file window cache for the whole JVM, so these settings apply to every repository read
+ * within the same Gradle daemon. Within a build, only the settings of the root project are used, for all repositories
+ * in the build (including those of nested repositories); they are installed before any repository is read, and the
+ * settings of other projects are ignored with a warning. Across builds, the first configured settings to be installed
+ * are kept for the lifetime of the daemon: later builds with different settings log a warning and do not replace the
+ * window cache, and removing the {@code storage} block does not restore JGit's defaults until the daemon is stopped.
+ * JGit's defaults are only left untouched if no version has been calculated with configured settings in the
+ * daemon.</p>
+ *
+ * @see VersionExtension#getStorage()
+ * @see WindowCacheConfig
+ */
+public abstract class StorageSettings {
+    private static final int KB = 1024;
+    private static final int MB = 1024 * KB;
+    private static final Logger LOGGER = Logging.getLogger(StorageSettings.class);
+
+    @Nullable
+    private static List<Object> installedSettings = null;
+
+    /**
+     * Whether pack files are read using memory-mapped I/O, instead of reading the pack file windows into heap memory.
+     *
+     * @return whether to memory-map pack files
+     * @see WindowCacheConfig#setPackedGitMMAP(boolean)
+     */
+    public abstract Property<Boolean> getMemoryMappedPacks();
+
+    /**
+     * The size of a single window read from a pack file, in bytes. This must be a power of two.
+     *
+     * @return the pack file window size
+     * @see WindowCacheConfig#setPackedGitWindowSize(int)
+     */
+    public abstract Property<Integer> getPackedGitWindowSize();
+
+    /**
+     * The maximum number of bytes of all pack file windows held in memory at once.
+     *
+     * @return the pack file window limit
+     * @see WindowCacheConfig#setPackedGitLimit(long)
+     */
+    public abstract Property<Long> getPackedGitLimit();
+
+    /**
+     * The maximum number of bytes held in the cache of inflated delta bases.
+     *
+     * @return the delta base cache size
+     * @see WindowCacheConfig#setDeltaBaseCacheLimit(int)
+     */
+    public abstract Property<Integer> getDeltaBaseCacheLimit();
+
+    /**
+     * The size in bytes at which objects are streamed from storage instead of being loaded entirely into memory.
+     *
+     * @return the stream file threshold
+     * @see WindowCacheConfig#setStreamFileThreshold(int)
+     */
+    public abstract Property<Integer> getStreamFileThreshold();
+
+    /**
+     * Configures settings suitable for large repositories with pack files in the hundreds of megabytes: memory-mapped
+     * packs, 1 MiB windows, a 512 MiB window limit, a 64 MiB delta base cache, and a 64 MiB stream file threshold.
+     */
+    public void largeRepository() {
+        getMemoryMappedPacks().set(true);
+        getPackedGitWindowSize().set(MB);
+        getPackedGitLimit().set(512L * MB);
+        getDeltaBaseCacheLimit().set(64 * MB);
+        getStreamFileThreshold().set(64 * MB);
+    }
+
+    /**
+     * Configures settings suitable for very large repositories with pack files of multiple gigabytes: memory-mapped
+     * packs, 4 MiB windows, a 2 GiB window limit, a 256 MiB delta base cache, and a 128 MiB stream file threshold.
+     *
+     * <p>As the windows are memory-mapped, most of the window limit is backed by the operating system's page cache
+     * rather than the JVM heap; however, the delta base cache is held on the heap, and the daemon's heap should be
+     * sized accordingly.</p>
+     */
+    public void veryLargeRepository() {
+        getMemoryMappedPacks().set(true);
+        getPackedGitWindowSize().set(4 * MB);
+        getPackedGitLimit().set(2048L * MB);
+        getDeltaBaseCacheLimit().set(256 * MB);
+        getStreamFileThreshold().set(128 * MB);
+    }
+
+    /**
+     * Finalizes the settings and returns whether any setting is configured.
+     *
+     * @return {@code true} if any setting is configured, {@code false} otherwise
+     */
+    boolean isConfigured() {
+        return !getSettings().stream().allMatch(setting -> setting == null);
+    }
+
+    /**
+     * Finalizes the settings and installs them into JGit's window cache, if any setting is configured and no settings
+     * have been installed yet by this plugin in the current daemon. If different settings were already installed, a
+     * warning is logged and the installed settings are kept.
+     *
+     * @return {@code true} if the settings were installed by this call, {@code false} otherwise
+     */
+    boolean install() {
+        final List<Object> settings = getSettings();
+        if (settings.stream().allMatch(setting -> setting == null)) return false;
+
+        synchronized (StorageSettings.class) {
+            if (installedSettings != null) {
+                if (!settings.equals(installedSettings)) {
+                    LOGGER.warn("JGit storage settings {} differ from the settings {} already installed in this daemon; " +
+                            "keeping the installed settings (stop the daemon to apply new settings)", settings, installedSettings);
+                }
+                return false;
+            }
+
+            final WindowCacheConfig config = new WindowCacheConfig();
+            if (getMemoryMappedPacks().isPresent()) config.setPackedGitMMAP(getMemoryMappedPacks().get());
+            if (getPackedGitWindowSize().isPresent()) config.setPackedGitWindowSize(getPackedGitWindowSize().get());
+            if (getPackedGitLimit().isPresent()) config.setPackedGitLimit(getPackedGitLimit().get());
+            if (getDeltaBaseCacheLimit().isPresent()) config.setDeltaBaseCacheLimit(getDeltaBaseCacheLimit().get());
+            if (getStreamFileThreshold().isPresent()) config.setStreamFileThreshold(getStreamFileThreshold().get());
+            try {
+                config.install();
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Invalid JGit storage settings, keeping JGit's defaults: {}", e.toString());
+                return false;
+            }
+
+            installedSettings = settings;
+            LOGGER.info("Installed JGit storage settings: mmap={}, windowSize={}, limit={}, deltaBaseCache={}, streamFileThreshold={}",
+                    config.isPackedGitMMAP(), config.getPackedGitWindowSize(), config.getPackedGitLimit(),
+                    config.getDeltaBaseCacheLimit(), config.getStreamFileThreshold());
+            return true;
+        }
+    }
+
+    private List<Object> getSettings() {
+        getMemoryMappedPacks().finalizeValue();
+        getPackedGitWindowSize().finalizeValue();
+        getPackedGitLimit().finalizeValue();
+        getDeltaBaseCacheLimit().finalizeValue();
+        getStreamFileThreshold().finalizeValue();
+
+        return Arrays.asList(getMemoryMappedPacks().getOrNull(), getPackedGitWindowSize().getOrNull(),
+                getPackedGitLimit().getOrNull(), getDeltaBaseCacheLimit().getOrNull(),
+                getStreamFileThreshold().getOrNull());
+    }
+}
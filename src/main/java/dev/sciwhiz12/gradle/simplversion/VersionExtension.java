@@ -22,7 +22,7 @@
 
 package dev.sciwhiz12.gradle.simplversion;
 
-import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
@@ -30,7 +30,11 @@ import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.gradle.api.Action;
+import org.gradle.api.GradleException;
+import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.Project;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
@@ -44,11 +48,19 @@ import org.gradle.api.specs.Specs;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
+import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -65,27 +77,48 @@ public abstract class VersionExtension {
      */
     public static final String SNAPSHOT_SUFFIX = "-SNAPSHOT";
 
+    private static final int DEFAULT_ABBREVIATION_LENGTH = 7;
+    private static final int MIN_ABBREVIATION_LENGTH = 4;
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
     private static final Logger LOGGER = Logging.getLogger(VersionExtension.class);
 
     private final Project project;
     private final Provider<VersionInformation> versionInfoProvider;
+    private final Provider<CommitInformation> commitInfoProvider;
+    private final Provider<VersionRepositoryService> repositoryService;
 
     private final Property<Pattern> stripPattern;
+    private final Property<ShallowClonePolicy> shallowClonePolicy;
+    private final StorageSettings storage;
+    private final boolean storageOwner;
+    private boolean warnedIgnoredStorage = false;
     private Spec<VersionInformation> skipIncrement = Specs.satisfyNone();
 
     private VersionInformation versionInformation = null;
     private boolean parsedVersion = false;
+    private CommitInformation commitInformation = null;
 
     public VersionExtension(Project project) {
         this.project = project;
 
         this.stripPattern = getObjectFactory().property(Pattern.class);
+        this.shallowClonePolicy = getObjectFactory().property(ShallowClonePolicy.class);
+        this.storage = getObjectFactory().newInstance(StorageSettings.class);
 
         this.getStripBranchPrefix().convention(true);
         this.getSnapshotIncrementPosition().convention(0);
+        this.getShallowClonePolicy().convention(ShallowClonePolicy.HEAD_TAGS_ONLY);
+        this.getShallowFallbackVersion().convention("0.0.0");
 
         this.versionInfoProvider = getProviderFactory().provider(this::calculateVersion);
+        this.commitInfoProvider = getProviderFactory().provider(this::calculateCommit);
+        this.repositoryService = VersionRepositoryService.register(project.getGradle());
+
+        // The root project owns the storage settings, as they are shared by all repositories in the build
+        this.storageOwner = Project.PATH_SEPARATOR.equals(project.getPath());
+        final VersionRepositoryService service = this.repositoryService.get();
+        if (this.storageOwner) service.setStorage(this.storage);
+        service.register(project.getProjectDir());
     }
 
     @Inject
@@ -98,137 +131,258 @@ public abstract class VersionExtension {
         if (parsedVersion) return versionInformation;
         parsedVersion = true;
 
+        finalizeProperties();
+
+        String timestamp = "1970-01-01T00:00:00+00:00";
+        String commitId = "0000000000000000000000000000000000000000";
+        String abbrevId = "000000";
+        VersionInformation calculated = new VersionInformation("0.0.0", true, "-UNKNOWN", timestamp, commitId, abbrevId, false);
+
+        final long startTime = System.nanoTime();
+        final VersionRepositoryService service = this.repositoryService.get();
+        checkIgnoredStorage();
+        final boolean installedStorage = service.start();
+        final long storageTime = System.nanoTime();
+        long stateTime = storageTime;
+        boolean shallow = false;
+
+        try {
+            final RepositoryState state = service.getState(project.getProjectDir());
+            stateTime = System.nanoTime();
+            shallow = state.shallow;
+
+            final ShallowClonePolicy policy = getShallowClonePolicy().get();
+            String tagName;
+            int commitCount = 0;
+            boolean trusted;
+            String untaggedVersion = "0.0.0";
+
+            if (state.shallow && policy == ShallowClonePolicy.HEAD_TAGS_ONLY) {
+                // Skip walking the history entirely, and only use the tags pointing at HEAD
+                tagName = state.headTagName;
+                trusted = tagName != null;
+            } else {
+                final NearestTagWalk.NearestTag nearest = state.getNearestTag();
+                if (!nearest.trusted && policy == ShallowClonePolicy.FAIL) {
+                    throw new GradleException("Cannot calculate version: repository at " + state.gitDir
+                            + " is a shallow clone and the nearest tag may be past the shallow commits"
+                            + " (deepen the clone, or configure a different shallow clone policy)");
+                }
+                trusted = nearest.trusted;
+                tagName = trusted ? nearest.tagName : null;
+                commitCount = nearest.distance;
+            }
+            if (!trusted) {
+                untaggedVersion = getShallowFallbackVersion().get();
+            }
+
+            if (state.commitId != null) {
+                timestamp = state.timestamp;
+                commitId = state.commitId;
+                final Integer abbreviationLength = getAbbreviationLength().getOrNull();
+                abbrevId = abbreviationLength != null ? abbreviate(state.commitId, abbreviationLength)
+                        : state.getAbbreviatedCommitId();
+            }
+
+            calculated = createVersionInformation(tagName, untaggedVersion, commitCount,
+                    tagName != null && state.isDirty(), state.branchName, timestamp, commitId,
+                    state.commitId != null ? abbrevId : null, trusted);
+
+        } catch (GradleException e) {
+            parsedVersion = false;
+            throw e;
+        } catch (Exception e) {
+            LOGGER.warn("Exception while getting version info from Git: {}", e.toString());
+        }
+
+        versionInformation = calculated;
+
+        if (LOGGER.isInfoEnabled()) {
+            final long endTime = System.nanoTime();
+            LOGGER.info("Calculated version {}{} in {} ms (storage{}: {} ms, repository: {} ms)",
+                    versionInformation, shallow ? " from shallow clone" : "", elapsedMillis(startTime, endTime),
+                    installedStorage ? " [installed]" : "", elapsedMillis(startTime, storageTime),
+                    elapsedMillis(storageTime, stateTime));
+        }
+        return versionInformation;
+    }
+
+    private void finalizeProperties() {
         this.getStripBranchPrefix().finalizeValue();
         this.getCustomPrefixes().finalizeValue();
         this.getDirtySuffix().finalizeValue();
         this.getSnapshotIncrementPosition().finalizeValue();
+        this.getAbbreviationLength().finalizeValue();
+        this.getShallowClonePolicy().finalizeValue();
+        this.getShallowFallbackVersion().finalizeValue();
+    }
+
+    private void checkIgnoredStorage() {
+        if (!storageOwner && !warnedIgnoredStorage && storage.isConfigured()) {
+            warnedIgnoredStorage = true;
+            LOGGER.warn("Ignoring the storage settings of {}, as only the storage settings of the root project are used",
+                    project);
+        }
+    }
+
+    private CommitInformation calculateCommit() {
+        if (commitInformation != null) return commitInformation;
+
+        this.getAbbreviationLength().finalizeValue();
 
         String timestamp = "1970-01-01T00:00:00+00:00";
         String commitId = "0000000000000000000000000000000000000000";
-        String abbrevId = "000000";
-        String rawVersion = "0.0.0";
-        boolean snapshot = true;
-        String classifiers = "-UNKNOWN";
 
-        try (Repository repository = new FileRepositoryBuilder()
-                .readEnvironment()
-                .findGitDir(project.getProjectDir())
-                .setMustExist(true).build()) {
-            boolean hasCommitId = false;
-            String branchName = null;
+        final long startTime = System.nanoTime();
+        try {
+            final HeadCommitReader.HeadCommit head = HeadCommitReader.readWithFallback(project.getProjectDir());
+            timestamp = FORMATTER.format(head.commitTime);
+            commitId = head.commitId;
+        } catch (IOException e) {
+            LOGGER.warn("Exception while getting commit info from Git: {}", e.toString());
+        }
 
-            Ref head = repository.exactRef(Constants.HEAD);
-            if (head != null && head.isSymbolic()) {
-                branchName = Repository.shortenRefName(head.getTarget().getName());
-            }
+        commitInformation = new CommitInformation(timestamp, commitId,
+                abbreviate(commitId, getAbbreviationLength().getOrElse(DEFAULT_ABBREVIATION_LENGTH)));
+        LOGGER.info("Read commit {} in {} ms", commitInformation, elapsedMillis(startTime, System.nanoTime()));
+        return commitInformation;
+    }
 
-            // Find HEAD commit and extract ID and timestamp
-            try (ObjectReader reader = repository.newObjectReader()) {
-                final ObjectId headCommitId = repository.resolve(Constants.HEAD);
-                final RevCommit headCommit = repository.parseCommit(headCommitId);
+    private String abbreviate(ObjectReader reader, ObjectId id) throws IOException {
+        final Integer length = getAbbreviationLength().getOrNull();
+        if (length != null) return abbreviate(id.name(), length);
+        return reader.abbreviate(id).name();
+    }
 
-                final PersonIdent identity = headCommit.getCommitterIdent();
-                final OffsetDateTime date = OffsetDateTime.ofInstant(identity.getWhen().toInstant(), identity.getTimeZone().toZoneId());
+    private static String abbreviate(String commitId, int length) {
+        return commitId.substring(0, Math.max(MIN_ABBREVIATION_LENGTH, Math.min(length, commitId.length())));
+    }
 
-                timestamp = FORMATTER.format(date);
-                commitId = headCommit.name();
-                abbrevId = reader.abbreviate(headCommitId).name();
-                hasCommitId = true;
-            } catch (Exception e) {
-                LOGGER.info("Failed to get commit ID, may be in detached HEAD state: %s", e);
-            }
+    private Repository openRepository() throws IOException {
+        return new FileRepositoryBuilder()
+                .readEnvironment()
+                .findGitDir(project.getProjectDir())
+                .setMustExist(true).build();
+    }
 
-            final Git git = Git.wrap(repository);
-            final String describe = git.describe().setTags(true).setLong(true).call();
+    @Nullable
+    static String getBranchName(Repository repository) throws IOException {
+        final Ref head = repository.exactRef(Constants.HEAD);
+        if (head != null && head.isSymbolic()) {
+            return Repository.shortenRefName(head.getTarget().getName());
+        }
+        return null;
+    }
 
-            classifiers = hasCommitId ? '+' + abbrevId : "";
+    static String formatTimestamp(RevCommit commit) {
+        return FORMATTER.format(getCommitTime(commit));
+    }
 
-            if (describe != null) {
-                String descVer;
-                String descCount;
+    static OffsetDateTime getCommitTime(RevCommit commit) {
+        final PersonIdent identity = commit.getCommitterIdent();
+        return OffsetDateTime.ofInstant(identity.getWhen().toInstant(), identity.getTimeZone().toZoneId());
+    }
 
-                final int lastSep = describe.lastIndexOf("-");
-                final String allExceptLast = describe.substring(0, lastSep);
-                final int secondToLastSep = allExceptLast.lastIndexOf("-");
-                descVer = allExceptLast.substring(0, secondToLastSep);
-                descCount = allExceptLast.substring(secondToLastSep + 1);
+    /**
+     * Creates the version information from the nearest tag and the commit's details, applying the configured prefix
+     * stripping and snapshot positional increment.
+     *
+     * @param tagName         the short name of the nearest tag, or {@code null} if no tag is reachable
+     * @param untaggedVersion the raw version used if no tag is reachable
+     * @param commitCount     the number of commits since the nearest tag
+     * @param dirty           whether the workspace has uncommitted changes
+     * @param branchName      the name of the current branch, or {@code null} if not on a branch
+     * @param timestamp       the formatted commit timestamp
+     * @param commitId        the full commit ID
+     * @param abbrevId        the abbreviated commit ID, or {@code null} if the commit ID could not be determined
+     * @param trusted         whether the nearest tag and commit count are known to be accurate
+     * @return the version information
+     */
+    private VersionInformation createVersionInformation(@Nullable String tagName, String untaggedVersion,
+                                                        int commitCount, boolean dirty, @Nullable String branchName,
+                                                        String timestamp, String commitId, @Nullable String abbrevId,
+                                                        boolean trusted) {
+        String rawVersion = untaggedVersion;
+        boolean snapshot = true;
+        String classifiers = abbrevId != null ? '+' + abbrevId : "";
+        if (abbrevId == null) abbrevId = "000000";
 
-                if (getStripBranchPrefix().get()) {
-                    descVer = tryStripPrefix(descVer, branchName);
-                }
+        if (tagName != null) {
+            String descVer = tagName;
 
-                for (String prefix : this.getCustomPrefixes().get()) {
-                    String prevVersion = descVer;
-                    descVer = tryStripPrefix(descVer, prefix);
-                    if (!prevVersion.equals(descVer)) break; // Changed, so skip out
-                }
+            if (getStripBranchPrefix().get()) {
+                descVer = tryStripPrefix(descVer, branchName);
+            }
 
-                final Pattern stripPattern = getStripPattern().getOrNull();
-                if (stripPattern != null) {
-                    final Matcher matcher = stripPattern.matcher(descVer);
-                    if (matcher.find()) {
-                        descVer = matcher.replaceAll("");
-                    }
-                }
+            for (String prefix : this.getCustomPrefixes().get()) {
+                String prevVersion = descVer;
+                descVer = tryStripPrefix(descVer, prefix);
+                if (!prevVersion.equals(descVer)) break; // Changed, so skip out
+            }
 
-                rawVersion = descVer.startsWith("v") ? descVer.substring(1) : descVer;
-                final int commitCount = Integer.parseInt(descCount);
-                final boolean dirty = !git.status().call().isClean();
-
-                if (commitCount == 0) {
-                    snapshot = dirty;
-                    classifiers = "";
-                } else if (dirty) {
-                    final String suffix = getDirtySuffix().getOrNull();
-                    if (suffix != null && suffix.isEmpty()) {
-                        classifiers += suffix;
-                    }
+            final Pattern stripPattern = getStripPattern().getOrNull();
+            if (stripPattern != null) {
+                final Matcher matcher = stripPattern.matcher(descVer);
+                if (matcher.find()) {
+                    descVer = matcher.replaceAll("");
                 }
+            }
 
+            rawVersion = descVer.startsWith("v") ? descVer.substring(1) : descVer;
+
+            if (commitCount == 0) {
+                snapshot = dirty;
+                classifiers = "";
+            } else if (dirty) {
+                final String suffix = getDirtySuffix().getOrNull();
+                if (suffix != null && suffix.isEmpty()) {
+                    classifiers += suffix;
+                }
             }
 
-            final VersionInformation skipIncrementVerisonInfo =
-                    new VersionInformation(rawVersion, snapshot, classifiers, timestamp, commitId, abbrevId);
-
-            if (snapshot) {
-
-                final int snapshotIncrementPosition = getSnapshotIncrementPosition().get();
-                if (!classifiers.equals("-UNKNOWN") && !rawVersion.equals("0.0.0")
-                        && snapshotIncrementPosition != 0
-                        && !skipIncrement.isSatisfiedBy(skipIncrementVerisonInfo)) {
-                    final String[] rawVersionSplit = rawVersion.split("[\\-+_]", 2);
-                    String[] versionSplit = rawVersionSplit[0].split("\\.");
-                    if (versionSplit.length >= Math.abs(snapshotIncrementPosition)) {
-                        int i = snapshotIncrementPosition < 0
-                                ? versionSplit.length + snapshotIncrementPosition
-                                : snapshotIncrementPosition - 1;
-                        try {
-                            versionSplit[i] = Integer.toString(Integer.parseInt(versionSplit[i]) + 1);
-
-                            boolean hasExtra = rawVersionSplit.length > 1;
-                            if (hasExtra) {
-                                rawVersion = String.join(String.valueOf(getRawVersion().charAt(rawVersionSplit[0].length())),
-                                        new ArrayList<>(Arrays.asList(String.join(".", versionSplit), rawVersionSplit[1])));
-                            } else {
-                                rawVersion = String.join(".", versionSplit);
-                            }
-
-                        } catch (NumberFormatException ignored) {
+        }
+
+        final VersionInformation skipIncrementVerisonInfo =
+                new VersionInformation(rawVersion, snapshot, classifiers, timestamp, commitId, abbrevId, trusted);
+
+        if (snapshot) {
+
+            final int snapshotIncrementPosition = getSnapshotIncrementPosition().get();
+            if (tagName != null && !rawVersion.equals("0.0.0")
+                    && snapshotIncrementPosition != 0
+                    && !skipIncrement.isSatisfiedBy(skipIncrementVerisonInfo)) {
+                final String[] rawVersionSplit = rawVersion.split("[\\-+_]", 2);
+                String[] versionSplit = rawVersionSplit[0].split("\\.");
+                if (versionSplit.length >= Math.abs(snapshotIncrementPosition)) {
+                    int i = snapshotIncrementPosition < 0
+                            ? versionSplit.length + snapshotIncrementPosition
+                            : snapshotIncrementPosition - 1;
+                    try {
+                        versionSplit[i] = Integer.toString(Integer.parseInt(versionSplit[i]) + 1);
+
+                        boolean hasExtra = rawVersionSplit.length > 1;
+                        if (hasExtra) {
+                            rawVersion = String.join(String.valueOf(rawVersion.charAt(rawVersionSplit[0].length())),
+                                    new ArrayList<>(Arrays.asList(String.join(".", versionSplit), rawVersionSplit[1])));
+                        } else {
+                            rawVersion = String.join(".", versionSplit);
                         }
 
+                    } catch (NumberFormatException ignored) {
                     }
 
                 }
 
-                classifiers = SNAPSHOT_SUFFIX + classifiers;
             }
 
-        } catch (Exception e) {
-            LOGGER.warn("Exception while getting version info from Git: {}", e.toString());
+            classifiers = SNAPSHOT_SUFFIX + classifiers;
         }
 
-        versionInformation = new VersionInformation(rawVersion, snapshot, classifiers, timestamp, commitId, abbrevId);
-        return versionInformation;
+        return new VersionInformation(rawVersion, snapshot, classifiers, timestamp, commitId, abbrevId, trusted);
+    }
+
+    static long elapsedMillis(long start, long end) {
+        return TimeUnit.NANOSECONDS.toMillis(Math.max(0, end - start));
     }
 
     private String tryStripPrefix(String version, @Nullable String prefix) {
@@ -324,6 +478,50 @@ public abstract class VersionExtension {
      */
     public abstract Property<String> getDirtySuffix();
 
+    /**
+     * The fixed length of abbreviated commit IDs. If present, commit IDs are abbreviated to this many characters
+     * without checking that the abbreviation is unique within the repository, which avoids probing the pack indexes.
+     * If absent, the version information uses the shortest unique abbreviation, while the
+     * {@linkplain #getCommit() commit information} uses a length of 7.
+     *
+     * <p>The length is clamped to be at least 4 and at most the length of the full commit ID.</p>
+     *
+     * @return the fixed abbreviation length
+     */
+    public abstract Property<Integer> getAbbreviationLength();
+
+    /**
+     * The policy for calculating the version when the repository is a shallow clone: whether to use only the tags
+     * pointing at the current commit, or to describe the current commit up to the shallow commits and either fail or
+     * use the {@linkplain #getShallowFallbackVersion() fallback version} if the result cannot be trusted. Defaults to
+     * {@link ShallowClonePolicy#HEAD_TAGS_ONLY}.
+     *
+     * @return the shallow clone policy
+     * @see VersionInformation#isTrusted()
+     */
+    public Property<ShallowClonePolicy> getShallowClonePolicy() {
+        return this.shallowClonePolicy;
+    }
+
+    /**
+     * Sets the shallow clone policy by its name, ignoring case.
+     *
+     * @param policy the name of the shallow clone policy
+     * @see #getShallowClonePolicy()
+     */
+    public void setShallowClonePolicy(String policy) {
+        getShallowClonePolicy().set(ShallowClonePolicy.valueOf(policy.toUpperCase(Locale.ROOT)));
+    }
+
+    /**
+     * The raw version used for a shallow clone when no trustworthy tag is found, as determined by the
+     * {@linkplain #getShallowClonePolicy() shallow clone policy}. The version is always a snapshot version, and is not
+     * stripped or incremented. Defaults to {@code 0.0.0}.
+     *
+     * @return the fallback raw version for shallow clones
+     */
+    public abstract Property<String> getShallowFallbackVersion();
+
     /**
      * The position in the version to be incremented if the version is marked as a snapshot.
      *
@@ -413,6 +611,143 @@ public abstract class VersionExtension {
         return skipIncrement;
     }
 
+    /**
+     * The storage settings used for reading the repository's object database. Only the settings of the root project
+     * are used, for all repositories in the build; in other projects, these settings are ignored with a warning. These
+     * settings are finalized and installed when a version is first calculated in the build.
+     *
+     * @return the storage settings
+     * @see StorageSettings
+     */
+    public StorageSettings getStorage() {
+        return this.storage;
+    }
+
+    /**
+     * Configures the storage settings used for reading the repository's object database.
+     *
+     * @param action the action to configure the storage settings
+     * @see #getStorage()
+     */
+    public void storage(Action<? super StorageSettings> action) {
+        action.execute(this.storage);
+    }
+
+    /**
+     * Calculates the version information for the given commit. This is equivalent to calling
+     * {@link #versionsAt(Collection)} with a single commit, which describes the commit with {@code git describe} as for
+     * the {@linkplain #getInfo() current version}. Prefer {@link #versionsAt(Collection)} over repeated calls to this
+     * method for many commits.
+     *
+     * @param commit the commit-ish, such as a commit ID, tag, or branch name
+     * @return the version information for the commit
+     * @see #versionsAt(Collection)
+     */
+    public VersionInformation versionAt(String commit) {
+        return versionsAt(Collections.singletonList(commit)).get(commit);
+    }
+
+    /**
+     * Calculates the version information for each of the given commits, using the same prefix stripping and snapshot
+     * positional increment as the {@linkplain #getInfo() current version}. Once called, all properties on this
+     * extension are finalized.
+     *
+     * <p>The version of each commit is the same as the {@linkplain #getInfo() current version} calculated when that
+     * commit is checked out (with a clean workspace). A single commit is described with {@code git describe}. For
+     * multiple commits, the nearest tags are found in a single walk over their shared history, rather than one
+     * {@code git describe} per commit; this walk reads the whole history reachable from the given commits before
+     * producing any result, so its cost is proportional to the size of that history rather than the distance to the
+     * nearest tag. The walk picks the tag with the shortest path of ancestry, which is the tag picked by
+     * {@code git describe} unless a merge joins histories with different nearest tags; such commits are described
+     * with {@code git describe} instead.</p>
+     *
+     * <p>The branch prefix is stripped using the current branch, and the workspace is treated as clean, as the commits are
+     * not necessarily checked out.</p>
+     *
+     * <p>In a shallow clone, the {@linkplain #getShallowClonePolicy() shallow clone policy} applies to each commit as it
+     * does to the current version. With {@link ShallowClonePolicy#HEAD_TAGS_ONLY}, the history is not walked, and only
+     * the tags pointing at each commit are used. Otherwise, the walk and {@code git describe} stop at the shallow
+     * commits; if the nearest tag of a commit may differ from that of a full clone, the build fails, or the
+     * {@linkplain #getShallowFallbackVersion() fallback version} is used and the version is marked as
+     * {@linkplain VersionInformation#isTrusted() not trusted}.</p>
+     *
+     * @param commits the commit-ish values, such as commit IDs, tags, or branch names
+     * @return a map of each given commit-ish to its version information, in the iteration order of the collection
+     * @throws InvalidUserDataException if any of the commit-ish values does not resolve to a commit
+     * @throws GradleException          if an error occurs while reading the repository, or if the nearest tag of a
+     *                                  commit cannot be trusted and the shallow clone policy is
+     *                                  {@link ShallowClonePolicy#FAIL}
+     */
+    public Map<String, VersionInformation> versionsAt(Collection<String> commits) {
+        finalizeProperties();
+        checkIgnoredStorage();
+        this.repositoryService.get().installStorage();
+
+        final long startTime = System.nanoTime();
+        try (Repository repository = openRepository();
+             RevWalk walk = new RevWalk(repository)) {
+            final String branchName = getBranchName(repository);
+
+            final Map<String, RevCommit> resolved = new LinkedHashMap<>();
+            final Map<RevCommit, String> timestamps = new HashMap<>();
+            for (String commit : commits) {
+                final ObjectId id = repository.resolve(commit);
+                if (id == null) {
+                    throw new InvalidUserDataException("Cannot resolve '" + commit + "' to a commit");
+                }
+                final RevCommit revCommit = walk.parseCommit(id);
+                resolved.put(commit, revCommit);
+                timestamps.put(revCommit, formatTimestamp(revCommit));
+            }
+
+            final Map<RevCommit, NearestTagWalk.NearestTag> nearestTags;
+            if (!walk.getObjectReader().getShallowCommits().isEmpty()
+                    && getShallowClonePolicy().get() == ShallowClonePolicy.HEAD_TAGS_ONLY) {
+                // As for the current version, skip walking the history and only use the tags pointing at each commit
+                final Map<ObjectId, String> tags = NearestTagWalk.collectTags(repository, walk);
+                nearestTags = new HashMap<>();
+                for (RevCommit commit : timestamps.keySet()) {
+                    final String tagName = tags.get(commit);
+                    nearestTags.put(commit, new NearestTagWalk.NearestTag(tagName, 0, tagName != null));
+                }
+            } else if (timestamps.size() == 1) {
+                final RevCommit commit = timestamps.keySet().iterator().next();
+                nearestTags = Collections.singletonMap(commit, NearestTagWalk.describe(repository, commit));
+            } else {
+                nearestTags = NearestTagWalk.find(repository, walk, timestamps.keySet());
+                for (Map.Entry<RevCommit, NearestTagWalk.NearestTag> entry : nearestTags.entrySet()) {
+                    if (entry.getValue() != null && entry.getValue().ambiguous) {
+                        entry.setValue(NearestTagWalk.describe(repository, entry.getKey()));
+                    }
+                }
+            }
+
+            final ObjectReader reader = walk.getObjectReader();
+            final Map<String, VersionInformation> versions = new LinkedHashMap<>();
+            for (Map.Entry<String, RevCommit> entry : resolved.entrySet()) {
+                final RevCommit commit = entry.getValue();
+                final NearestTagWalk.NearestTag nearest = nearestTags.get(commit);
+                final boolean trusted = nearest != null && nearest.trusted;
+                if (!trusted && getShallowClonePolicy().get() == ShallowClonePolicy.FAIL) {
+                    throw new GradleException("Cannot calculate version of '" + entry.getKey() + "': repository at "
+                            + repository.getDirectory() + " is a shallow clone and the nearest tag may be past the"
+                            + " shallow commits (deepen the clone, or configure a different shallow clone policy)");
+                }
+                final String tagName = trusted ? nearest.tagName : null;
+                versions.put(entry.getKey(), createVersionInformation(
+                        tagName, trusted ? "0.0.0" : getShallowFallbackVersion().get(),
+                        tagName != null ? nearest.distance : 0, false,
+                        branchName, timestamps.get(commit), commit.name(), abbreviate(reader, commit), trusted));
+            }
+
+            LOGGER.info("Calculated versions for {} commits in {} ms", versions.size(),
+                    elapsedMillis(startTime, System.nanoTime()));
+            return versions;
+        } catch (IOException | GitAPIException e) {
+            throw new GradleException("Failed to calculate versions from Git", e);
+        }
+    }
+
     /**
      * Returns the version information, automatically calculated when first queried. Once the version is calculated,
      * all properties on this extension are finalized.
@@ -423,6 +758,22 @@ public abstract class VersionExtension {
         return versionInfoProvider;
     }
 
+    /**
+     * Returns the information for the current commit, automatically read when first queried. This does not calculate
+     * the version information, and avoids opening the full repository: {@code HEAD} is resolved by reading the refs
+     * directly, and only the commit's headers are read. If the repository uses a layout which cannot be read directly,
+     * the repository is opened as usual. Once the commit information is read, the
+     * {@linkplain #getAbbreviationLength() abbreviation length} is finalized.
+     *
+     * <p>This should be preferred over the commit-related methods on this extension for builds which only need the
+     * commit information.</p>
+     *
+     * @return the commit information, in a provider
+     */
+    public Provider<CommitInformation> getCommit() {
+        return commitInfoProvider;
+    }
+
     /**
      * Returns the full version. This automatically calculates the version information if not calculated previously.
      *
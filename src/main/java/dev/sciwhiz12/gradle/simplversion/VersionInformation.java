@@ -38,14 +38,16 @@ public class VersionInformation {
     private final String timestamp;
     private final String commitId;
     private final String abbrevId;
+    private final boolean trusted;
 
-    VersionInformation(String rawVersion, boolean snapshot, String classifiers, String timestamp, String commitId, String abbrevId) {
+    VersionInformation(String rawVersion, boolean snapshot, String classifiers, String timestamp, String commitId, String abbrevId, boolean trusted) {
         this.rawVersion = rawVersion;
         this.snapshot = snapshot;
         this.classifiers = classifiers;
         this.timestamp = timestamp;
         this.commitId = commitId;
         this.abbrevId = abbrevId;
+        this.trusted = trusted;
     }
 
     /**
@@ -131,6 +133,21 @@ public class VersionInformation {
         return abbrevId;
     }
 
+    /**
+     * Returns whether the version is trusted to be accurate.
+     *
+     * <p>The version is not trusted if the version information could not be read from the repository, or if the
+     * repository is a shallow clone and the nearest tag could not be determined reliably, in which case the
+     * {@linkplain VersionExtension#getShallowFallbackVersion() fallback version} is used as configured by the
+     * {@linkplain VersionExtension#getShallowClonePolicy() shallow clone policy}. An untrusted version should not be
+     * used for releases.</p>
+     *
+     * @return {@code true} if the version is trusted, {@code false} otherwise
+     */
+    public boolean isTrusted() {
+        return trusted;
+    }
+
     /**
      * Returns the simple version, which is the {@linkplain #getRawVersion() raw version} with the snapshot suffix
      * ({@value VersionExtension#SNAPSHOT_SUFFIX}) appended if this is a {@linkplain #isSnapshot() snapshot version}.
@@ -161,12 +178,12 @@ public class VersionInformation {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         VersionInformation that = (VersionInformation) o;
-        return snapshot == that.snapshot && rawVersion.equals(that.rawVersion) && classifiers.equals(that.classifiers) && timestamp.equals(that.timestamp) && commitId.equals(that.commitId) && abbrevId.equals(that.abbrevId);
+        return snapshot == that.snapshot && trusted == that.trusted && rawVersion.equals(that.rawVersion) && classifiers.equals(that.classifiers) && timestamp.equals(that.timestamp) && commitId.equals(that.commitId) && abbrevId.equals(that.abbrevId);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(rawVersion, snapshot, classifiers, timestamp, commitId, abbrevId);
+        return Objects.hash(rawVersion, snapshot, classifiers, timestamp, commitId, abbrevId, trusted);
     }
 
     /**
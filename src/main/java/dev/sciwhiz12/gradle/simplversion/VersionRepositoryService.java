@@ -0,0 +1,199 @@
+/*
+ * simplversion - Copyright (c) 2022 sciwhiz12
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.sciwhiz12.gradle.simplversion;
+
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A build service which reads the state of each repository used in the build once, shared between all projects.
+ *
+ * <p>Projects are mapped to repositories by their Git directory, so projects in Git submodules or nested repositories
+ * are versioned from their own repository, while projects in the same repository share a single read. When a version
+ * is first calculated, the repositories of all registered directories are read concurrently on a bounded executor, so
+ * the time to read all repositories does not grow linearly with their number; directories registered afterwards are
+ * read as soon as they register.</p>
+ *
+ * <p>The {@link VersionSettingsPlugin} registers the directories of all projects once the settings are evaluated, before
+ * any project is evaluated. Without it, each project which applies the plugin only registers its directory when its
+ * {@linkplain VersionExtension extension} is created, so projects evaluated after the first version is calculated are
+ * read one after another as they calculate their versions.</p>
+ *
+ * <p>The service owns the {@linkplain StorageSettings storage settings} used for all repositories in the build: these
+ * are the settings of the root project's extension, if the root project applies the plugin, and are installed once
+ * before any repository is read.</p>
+ *
+ * @see RepositoryState
+ */
+public abstract class VersionRepositoryService implements BuildService<BuildServiceParameters.None>, AutoCloseable {
+    static final String NAME = "simplversionRepositories";
+
+    private final ExecutorService executor;
+    private final Map<File, CompletableFuture<RepositoryState>> states = new ConcurrentHashMap<>();
+    private final Set<File> directories = new LinkedHashSet<>();
+    private boolean started = false;
+    @Nullable
+    private StorageSettings storage = null;
+    private boolean storageInstalled = false;
+
+    /**
+     * Registers this service with the given build, if not already registered.
+     *
+     * @param gradle the build
+     * @return the service
+     */
+    static Provider<VersionRepositoryService> register(Gradle gradle) {
+        return gradle.getSharedServices().registerIfAbsent(NAME, VersionRepositoryService.class, spec -> {
+        });
+    }
+
+    public VersionRepositoryService() {
+        final int threads = Runtime.getRuntime().availableProcessors();
+        final AtomicInteger threadCount = new AtomicInteger(0);
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "simplversion-git-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+    }
+
+    /**
+     * Registers a directory whose repository should be read. If the repositories are already being read, the
+     * repository of the directory is read immediately.
+     *
+     * @param directory the directory, such as the project directory of a project which applies the plugin
+     */
+    synchronized void register(File directory) {
+        directories.add(directory);
+        if (started) request(directory);
+    }
+
+    /**
+     * Sets the storage settings to install before any repository is read.
+     *
+     * @param storage the storage settings of the root project
+     */
+    synchronized void setStorage(StorageSettings storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Installs the storage settings, if any are set and they have not been installed yet for this build.
+     *
+     * @return {@code true} if the settings were installed by this call, {@code false} otherwise
+     * @see StorageSettings#install()
+     */
+    synchronized boolean installStorage() {
+        if (storageInstalled) return false;
+        storageInstalled = true;
+        return storage != null && storage.install();
+    }
+
+    /**
+     * Installs the storage settings and starts reading the repositories of all registered directories, if this has not
+     * been done yet for this build.
+     *
+     * @return {@code true} if the storage settings were installed by this call, {@code false} otherwise
+     */
+    synchronized boolean start() {
+        if (started) return false;
+        started = true;
+
+        final boolean installed = installStorage();
+        for (File directory : directories) {
+            request(directory);
+        }
+        return installed;
+    }
+
+    /**
+     * Returns the state of the repository containing the given directory, waiting for it to be read if necessary.
+     *
+     * @param directory the directory within the repository
+     * @return the repository state
+     * @throws Exception if an error occurs while reading the repository
+     */
+    RepositoryState getState(File directory) throws Exception {
+        try {
+            return request(directory).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+
+    private CompletableFuture<RepositoryState> request(File directory) {
+        final File gitDir;
+        try {
+            gitDir = findGitDir(directory);
+        } catch (IOException e) {
+            final CompletableFuture<RepositoryState> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        return states.computeIfAbsent(gitDir, key -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return RepositoryState.read(directory);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor));
+    }
+
+    private static File findGitDir(File directory) throws IOException {
+        final File gitDir = new FileRepositoryBuilder()
+                .readEnvironment()
+                .findGitDir(directory)
+                .getGitDir();
+        if (gitDir == null) throw new RepositoryNotFoundException(directory);
+        return gitDir.getCanonicalFile();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
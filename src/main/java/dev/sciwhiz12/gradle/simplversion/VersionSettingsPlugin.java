@@ -0,0 +1,50 @@
+/*
+ * simplversion - Copyright (c) 2022 sciwhiz12
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.sciwhiz12.gradle.simplversion;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.initialization.ProjectDescriptor;
+import org.gradle.api.initialization.Settings;
+
+/**
+ * A companion settings plugin which registers the directories of all projects in the build with the
+ * {@link VersionRepositoryService} once the settings are evaluated, so the repositories of all projects are read
+ * concurrently when a version is first calculated, even for projects which are evaluated later. Only the project
+ * descriptors are used, so this does not access the state of any project.
+ */
+public class VersionSettingsPlugin implements Plugin<Settings> {
+    @Override
+    public void apply(Settings settings) {
+        settings.getGradle().settingsEvaluated(evaluated -> {
+            final VersionRepositoryService service = VersionRepositoryService.register(evaluated.getGradle()).get();
+            registerProjects(service, evaluated.getRootProject());
+        });
+    }
+
+    private static void registerProjects(VersionRepositoryService service, ProjectDescriptor project) {
+        service.register(project.getProjectDir());
+        for (ProjectDescriptor child : project.getChildren()) {
+            registerProjects(service, child);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * simplversion - Copyright (c) 2022 sciwhiz12
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.sciwhiz12.gradle.simplversion;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.OffsetDateTime;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeadCommitReaderTest {
+    // 2020-09-13T12:26:40Z
+    private static final Date COMMIT_DATE = new Date(1600000000000L);
+    private static final PersonIdent IDENT = new PersonIdent("Tester", "tester@example.com", COMMIT_DATE,
+            TimeZone.getTimeZone("GMT+05:30"));
+    private static final OffsetDateTime COMMIT_TIME = OffsetDateTime.parse("2020-09-13T17:56:40+05:30");
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void readsLooseRefAndLooseCommit() throws Exception {
+        try (Git git = Git.init().setDirectory(tempDir).call()) {
+            final RevCommit commit = commit(git, IDENT);
+            final File gitDir = git.getRepository().getDirectory();
+            assertTrue(looseObject(gitDir, commit).isFile());
+
+            assertHead(commit, COMMIT_TIME, HeadCommitReader.read(gitDir));
+        }
+    }
+
+    @Test
+    void readsPackedRefsAndPackedCommit() throws Exception {
+        try (Git git = Git.init().setDirectory(tempDir).call()) {
+            commit(git, IDENT);
+            final RevCommit commit = commit(git, IDENT);
+            git.gc().call();
+            final File gitDir = git.getRepository().getDirectory();
+            assertFalse(looseObject(gitDir, commit).exists());
+            assertTrue(new File(gitDir, "packed-refs").isFile());
+            assertFalse(new File(gitDir, git.getRepository().getFullBranch()).exists());
+
+            assertHead(commit, COMMIT_TIME, HeadCommitReader.read(gitDir));
+        }
+    }
+
+    @Test
+    void readsLooseRefToPackedCommit() throws Exception {
+        try (Git git = Git.init().setDirectory(tempDir).call()) {
+            final RevCommit commit = commit(git, IDENT);
+            git.gc().call();
+            git.branchCreate().setName("feature").call();
+            git.checkout().setName("feature").call();
+            final File gitDir = git.getRepository().getDirectory();
+            assertFalse(looseObject(gitDir, commit).exists());
+            assertTrue(new File(gitDir, "refs/heads/feature").isFile());
+
+            assertHead(commit, COMMIT_TIME, HeadCommitReader.read(gitDir));
+        }
+    }
+
+    @Test
+    void readsDetachedHead() throws Exception {
+        try (Git git = Git.init().setDirectory(tempDir).call()) {
+            final RevCommit first = commit(git, IDENT);
+            commit(git, IDENT);
+            git.checkout().setName(first.name()).call();
+            final File gitDir = git.getRepository().getDirectory();
+            assertEquals(first.name(), read(new File(gitDir, "HEAD")).trim());
+
+            assertHead(first, COMMIT_TIME, HeadCommitReader.read(gitDir));
+        }
+    }
+
+    @Test
+    void readsWorktreeThroughCommonDir() throws Exception {
+        final File mainDir = new File(tempDir, "main");
+        final File worktreeDir = new File(tempDir, "worktree");
+        try (Git git = Git.init().setDirectory(mainDir).call()) {
+            final RevCommit featureCommit = commit(git, IDENT);
+            git.branchCreate().setName("feature").call();
+            commit(git, IDENT);
+
+            // Lay out a linked worktree as 'git worktree add' would, which JGit cannot create
+            final File worktreeGitDir = new File(git.getRepository().getDirectory(), "worktrees/worktree");
+            assertTrue(worktreeGitDir.mkdirs() && worktreeDir.mkdirs());
+            write(new File(worktreeGitDir, "HEAD"), "ref: refs/heads/feature\n");
+            write(new File(worktreeGitDir, "commondir"), "../..\n");
+            write(new File(worktreeGitDir, "gitdir"), new File(worktreeDir, ".git").getAbsolutePath() + "\n");
+            write(new File(worktreeDir, ".git"), "gitdir: " + worktreeGitDir.getAbsolutePath() + "\n");
+
+            final File gitDir = HeadCommitReader.findGitDir(worktreeDir);
+            assertEquals(worktreeGitDir.getAbsoluteFile(), gitDir);
+            assertHead(featureCommit, COMMIT_TIME, HeadCommitReader.read(gitDir));
+        }
+    }
+
+    @Test
+    void readsNegativeTimeZoneOffset() throws Exception {
+        final PersonIdent ident = new PersonIdent(IDENT, COMMIT_DATE, TimeZone.getTimeZone("GMT-03:00"));
+        try (Git git = Git.init().setDirectory(tempDir).call()) {
+            final RevCommit commit = commit(git, ident);
+
+            assertHead(commit, OffsetDateTime.parse("2020-09-13T09:26:40-03:00"),
+                    HeadCommitReader.read(git.getRepository().getDirectory()));
+        }
+    }
+
+    @Test
+    void fallsBackToJGitForAlternates() throws Exception {
+        final File baseDir = new File(tempDir, "base");
+        final File borrowerDir = new File(tempDir, "borrower");
+        try (Git base = Git.init().setDirectory(baseDir).call();
+             Git borrower = Git.init().setDirectory(borrowerDir).call()) {
+            final RevCommit commit = commit(base, IDENT);
+            final File gitDir = borrower.getRepository().getDirectory();
+            write(new File(gitDir, "objects/info/alternates"),
+                    new File(base.getRepository().getDirectory(), "objects").getAbsolutePath() + "\n");
+            write(new File(gitDir, "HEAD"), commit.name() + "\n");
+
+            assertThrows(HeadCommitReader.UnsupportedLayoutException.class, () -> HeadCommitReader.read(gitDir));
+            assertHead(commit, COMMIT_TIME, HeadCommitReader.readWithFallback(borrowerDir));
+        }
+    }
+
+    @Test
+    void failsForUnbornBranch() throws Exception {
+        try (Git ignored = Git.init().setDirectory(tempDir).call()) {
+            assertThrows(IOException.class, () -> HeadCommitReader.readWithFallback(tempDir));
+        }
+    }
+
+    private static RevCommit commit(Git git, PersonIdent ident) throws Exception {
+        return git.commit().setMessage("Commit").setAllowEmpty(true).setAuthor(ident).setCommitter(ident).call();
+    }
+
+    private static File looseObject(File gitDir, RevCommit commit) {
+        return new File(gitDir, "objects/" + commit.name().substring(0, 2) + "/" + commit.name().substring(2));
+    }
+
+    private static void assertHead(RevCommit expected, OffsetDateTime expectedTime, HeadCommitReader.HeadCommit actual) {
+        assertEquals(expected.name(), actual.commitId);
+        assertEquals(expectedTime, actual.commitTime);
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * simplversion - Copyright (c) 2022 sciwhiz12
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package dev.sciwhiz12.gradle.simplversion;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NearestTagWalkTest {
+    private static final PersonIdent IDENT = new PersonIdent("Tester", "tester@example.com",
+            new Date(1600000000000L), TimeZone.getTimeZone("UTC"));
+
+    @TempDir
+    File tempDir;
+    private int commitCount = 0;
+
+    @Test
+    void linearHistoryMatchesDescribe() throws Exception {
+        try (Git git = Git.init().setDirectory(tempDir).call()) {
+            final List<RevCommit> commits = new ArrayList<>();
+            commits.add(commit(git));
+            commits.add(commit(git));
+            git.tag().setName("v1.0.0").setAnnotated(false).call();
+            commits.add(commit(git));
+            commits.add(commit(git));
+            git.tag().setName("v1.1.0").setAnnotated(false).call();
+            commits.add(commit(git));
+            commits.add(commit(git));
+
+            final Map<RevCommit, NearestTagWalk.NearestTag> nearest = find(git, commits);
+            for (RevCommit commit : commits) {
+                final NearestTagWalk.NearestTag described = NearestTagWalk.describe(git.getRepository(), commit);
+                final NearestTagWalk.NearestTag walked = nearest.get(commit);
+                assertEquals(describe(git, commit), described.tagName == null ? null
+                        : described.tagName + "-" + described.distance);
+                assertEquals(described.tagName, walked.tagName);
+                assertEquals(described.distance, walked.distance);
+                assertTrue(walked.trusted && described.trusted);
+                assertFalse(walked.ambiguous);
+            }
+            assertNull(nearest.get(commits.get(0)).tagName);
+            assertEquals("v1.1.0", nearest.get(commits.get(5)).tagName);
+            assertEquals(2, nearest.get(commits.get(5)).distance);
+        }
+    }
+
+    @Test
+    void multipleTagsOnOneCommitMatchDescribe() throws Exception {
+        try (Git git = Git.init().setDirectory(tempDir).call()) {
+            final RevCommit lightweight = commit(git);
+            git.tag().setName("b").setAnnotated(false).call();
+            git.tag().setName("a").setAnnotated(false).call();
+            final RevCommit annotated = commit(git);
+            git.tag().setName("z").setAnnotated(false).call();
+            annotatedTag(git, "c", 1600000000000L);
+            annotatedTag(git, "d", 1600000100000L);
+            final RevCommit sameTime = commit(git);
+            annotatedTag(git, "y", 1600000000000L);
+            annotatedTag(git, "x", 1600000000000L);
+
+            final Map<RevCommit, NearestTagWalk.NearestTag> nearest =
+                    find(git, Arrays.asList(lightweight, annotated, sameTime));
+            assertEquals("a", nearest.get(lightweight).tagName);
+            assertEquals("d", nearest.get(annotated).tagName);
+            assertEquals("x", nearest.get(sameTime).tagName);
+            for (RevCommit commit : nearest.keySet()) {
+                assertEquals(describe(git, commit), nearest.get(commit).tagName + "-0");
+            }
+        }
+    }
+
+    @Test
+    void mergeOfSameNearestTagMatchesDescribe() throws Exception {
+        try (Git git = Git.init().setDirectory(tempDir).call()) {
+            commit(git);
+            git.tag().setName("1.0.0").setAnnotated(false).call();
+            final String main = git.getRepository().getBranch();
+            git.checkout().setCreateBranch(true).setName("side").call();
+            commit(git);
+            commit(git);
+            final RevCommit sideTip = commit(git);
+            git.checkout().setName(main).call();
+            commit(git);
+            final RevCommit merge = merge(git, sideTip);
+            final RevCommit child = commit(git);
+
+            final Map<RevCommit, NearestTagWalk.NearestTag> nearest = find(git, Arrays.asList(merge, child));
+            for (RevCommit commit : nearest.keySet()) {
+                assertEquals("1.0.0", nearest.get(commit).tagName);
+                assertFalse(nearest.get(commit).ambiguous);
+                assertEquals("1.0.0", NearestTagWalk.describe(git.getRepository(), commit).tagName);
+            }
+            // The walk counts the shortest path, while describe counts every commit since the tag
+            assertEquals(2, nearest.get(merge).distance);
+            assertEquals(5, NearestTagWalk.describe(git.getRepository(), merge).distance);
+        }
+    }
+
+    @Test
+    void mergeOfDifferentNearestTagsIsAmbiguous() throws Exception {
+        try (Git git = Git.init().setDirectory(tempDir).call()) {
+            commit(git);
+            final String main = git.getRepository().getBranch();
+            git.checkout().setCreateBranch(true).setName("side").call();
+            for (int i = 0; i < 8; i++) commit(git);
+            git.tag().setName("2.0.0").setAnnotated(false).call();
+            commit(git);
+            commit(git);
+            final RevCommit sideTip = commit(git);
+            git.checkout().setName(main).call();
+            commit(git);
+            git.tag().setName("1.5.0").setAnnotated(false).call();
+            commit(git);
+            final RevCommit merge = merge(git, sideTip);
+            final RevCommit child = commit(git);
+
+            final Map<RevCommit, NearestTagWalk.NearestTag> nearest = find(git, Arrays.asList(sideTip, merge, child));
+            assertFalse(nearest.get(sideTip).ambiguous);
+            assertEquals("2.0.0", nearest.get(sideTip).tagName);
+            // The shortest path leads to 1.5.0, but describe counts fewer commits since 2.0.0
+            assertEquals("1.5.0", nearest.get(merge).tagName);
+            assertTrue(nearest.get(merge).ambiguous);
+            assertTrue(nearest.get(child).ambiguous);
+            for (RevCommit commit : Arrays.asList(merge, child)) {
+                final NearestTagWalk.NearestTag described = NearestTagWalk.describe(git.getRepository(), commit);
+                assertEquals("2.0.0", described.tagName);
+                assertEquals(describe(git, commit), described.tagName + "-" + described.distance);
+            }
+        }
+    }
+
+    @Test
+    void tiesBetweenParentsPreferTheFirstParent() throws Exception {
+        try (Git git = Git.init().setDirectory(tempDir).call()) {
+            commit(git);
+            final String main = git.getRepository().getBranch();
+            git.checkout().setCreateBranch(true).setName("side").call();
+            commit(git);
+            git.tag().setName("side-tag").setAnnotated(false).call();
+            final RevCommit sideTip = commit(git);
+            git.checkout().setName(main).call();
+            commit(git);
+            git.tag().setName("main-tag").setAnnotated(false).call();
+            commit(git);
+            final RevCommit merge = merge(git, sideTip);
+
+            final NearestTagWalk.NearestTag nearest = find(git, Collections.singletonList(merge)).get(merge);
+            assertEquals("main-tag", nearest.tagName);
+            assertEquals(2, nearest.distance);
+            assertTrue(nearest.ambiguous);
+        }
+    }
+
+    @Test
+    void shallowHistoryIsTrustedOnlyIfTheTagIsBeforeTheShallowCommits() throws Exception {
+        final List<RevCommit> commits = new ArrayList<>();
+        try (Git git = Git.init().setDirectory(tempDir).call()) {
+            for (int i = 0; i < 6; i++) {
+                commits.add(commit(git));
+                if (i == 1) git.tag().setName("v1.0.0").setAnnotated(false).call();
+                if (i == 4) git.tag().setName("v2.0.0").setAnnotated(false).call();
+            }
+        }
+        final RevCommit tip = commits.get(5);
+        final RevCommit beforeSecondTag = commits.get(3);
+
+        // The shallow commit is between both tags: v2.0.0 is reachable before it, v1.0.0 is past it
+        writeShallow(commits.get(2));
+        try (Git git = Git.open(tempDir)) {
+            final Map<RevCommit, NearestTagWalk.NearestTag> nearest = find(git, Arrays.asList(tip, beforeSecondTag));
+            assertShallowResult("v2.0.0", 1, true, nearest.get(tip));
+            assertShallowResult(null, 0, false, nearest.get(beforeSecondTag));
+            assertShallowResult("v2.0.0", 1, true, NearestTagWalk.describe(git.getRepository(), tip));
+            assertShallowResult(null, 0, false, NearestTagWalk.describe(git.getRepository(), beforeSecondTag));
+        }
+
+        // A tagged shallow commit is trusted, as its tag is reached before its missing parents
+        writeShallow(commits.get(1));
+        try (Git git = Git.open(tempDir)) {
+            final Map<RevCommit, NearestTagWalk.NearestTag> nearest = find(git, Collections.singletonList(beforeSecondTag));
+            assertShallowResult("v1.0.0", 2, true, nearest.get(beforeSecondTag));
+            assertShallowResult("v1.0.0", 2, true, NearestTagWalk.describe(git.getRepository(), beforeSecondTag));
+        }
+    }
+
+    private static void assertShallowResult(@Nullable String tagName, int distance, boolean trusted,
+                                            NearestTagWalk.NearestTag actual) {
+        assertEquals(tagName, actual.tagName);
+        assertEquals(distance, actual.distance);
+        assertEquals(trusted, actual.trusted);
+    }
+
+    private void writeShallow(RevCommit commit) throws Exception {
+        Files.write(new File(tempDir, ".git/shallow").toPath(),
+                (commit.name() + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<RevCommit, NearestTagWalk.NearestTag> find(Git git, List<RevCommit> commits)
+            throws Exception {
+        final Repository repository = git.getRepository();
+        try (RevWalk walk = new RevWalk(repository)) {
+            final List<RevCommit> targets = new ArrayList<>();
+            for (RevCommit commit : commits) {
+                targets.add(walk.parseCommit(commit));
+            }
+            return NearestTagWalk.find(repository, walk, targets);
+        }
+    }
+
+    @Nullable
+    private static String describe(Git git, ObjectId commit) throws Exception {
+        final String describe = git.describe().setTarget(commit).setTags(true).setLong(true).call();
+        return describe == null ? null : describe.substring(0, describe.lastIndexOf("-g"));
+    }
+
+    private RevCommit commit(Git git) throws Exception {
+        // Distinct messages, so commits on different branches with the same parent are distinct
+        return git.commit().setMessage("Commit " + ++commitCount).setAllowEmpty(true)
+                .setAuthor(IDENT).setCommitter(IDENT).call();
+    }
+
+    private RevCommit merge(Git git, RevCommit other) throws Exception {
+        git.merge().include(other).setStrategy(MergeStrategy.OURS).setCommit(false)
+                .setFastForward(MergeCommand.FastForwardMode.NO_FF).call();
+        return commit(git);
+    }
+
+    private static void annotatedTag(Git git, String name, long time) throws Exception {
+        git.tag().setName(name).setAnnotated(true).setMessage(name)
+                .setTagger(new PersonIdent(IDENT, new Date(time))).call();
+    }
+}